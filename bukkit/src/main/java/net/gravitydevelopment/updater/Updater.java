@@ -0,0 +1,315 @@
+package net.gravitydevelopment.updater;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Check for updates on BukkitDev for a given plugin, and download the updates if needed.
+ * <p>
+ * <b>VERY, VERY IMPORTANT</b>: Because there are no standards for adding auto-update toggles in your plugin's config, this system provides NO CHECK WITH YOUR CONFIG to make sure the user has allowed auto-updating.
+ * <br>
+ * It is a <b>BUKKIT POLICY</b> that you include a boolean value in your config that prevents the auto-updater from running <b>AT ALL</b>.
+ * <br>
+ * If you fail to include this option in your config, your plugin will be <b>REJECTED</b> when you attempt to submit it to dev.bukkit.org.
+ * </p>
+ * An example of a good configuration option would be something similar to 'auto-update: true' - if this value is set to false you may NOT run the auto-updater.
+ * <br>
+ * If you are unsure about these rules, please read the plugin submission guidelines: http://goo.gl/8iU5l
+ *
+ * @author Gravity
+ * @version 3.0
+ */
+
+public class Updater extends AbstractUpdater {
+
+    /* Constants */
+
+    // Config key for api key
+    private static final String API_KEY_CONFIG_KEY = "api-key";
+    // Config key for disabling Updater
+    private static final String DISABLE_CONFIG_KEY = "disable";
+    // Default api key value in config
+    private static final String API_KEY_DEFAULT = "PUT_API_KEY_HERE";
+    // Default disable value in config
+    private static final boolean DISABLE_DEFAULT = false;
+    // Config section mapping plugin names to their author's key fingerprints
+    private static final String TRUSTED_KEYS_CONFIG_KEY = "trusted-keys";
+    // Remembers which artifacts have already been verified
+    private static final String VERIFIED_CACHE_FILE = "verified.properties";
+    // Config key for how many days a downloaded update is kept
+    private static final String RETENTION_DAYS_CONFIG_KEY = "retention.max-age-days";
+    // Config key for how many megabytes of downloaded updates are kept
+    private static final String RETENTION_SIZE_CONFIG_KEY = "retention.max-size-mb";
+    // Default retention age in config
+    private static final int RETENTION_DAYS_DEFAULT = 7;
+    // Default retention size in config
+    private static final int RETENTION_SIZE_DEFAULT = 100;
+    // Records the files Updater has written to the update folder
+    private static final String MANIFEST_FILE = "manifest.properties";
+    // Records the health of the hosts Updater contacts, shared by every plugin
+    private static final String HOSTS_FILE = "hosts.properties";
+    // Report of what every plugin's last check found
+    private static final String PLAN_FILE = "plan.json";
+    // Listeners that unregister a plugin's projects when it is disabled, one per plugin
+    private static final Map<String, DisableListener> LISTENERS = new HashMap<String, DisableListener>();
+
+    /* User-provided variables */
+
+    // Plugin running Updater
+    private final Plugin plugin;
+    // The provided callback (if any)
+    private final UpdateCallback callback;
+    // Updater's configuration, shared by every plugin
+    private final File configFile;
+
+    /**
+     * Initialize the updater.
+     *
+     * @param plugin   The plugin that is checking for an update.
+     * @param id       The dev.bukkit.org id of the project.
+     * @param file     The file that the plugin is running from, get this by doing this.getFile() from within your main class.
+     * @param type     Specify the type of update this will be. See {@link UpdateType}
+     * @param announce True if the program should announce the progress of new updates in console.
+     */
+    public Updater(Plugin plugin, int id, File file, UpdateType type, boolean announce) {
+        this(plugin, id, file, type, null, announce);
+    }
+
+    /**
+     * Initialize the updater with the provided callback.
+     *
+     * @param plugin   The plugin that is checking for an update.
+     * @param id       The dev.bukkit.org id of the project.
+     * @param file     The file that the plugin is running from, get this by doing this.getFile() from within your main class.
+     * @param type     Specify the type of update this will be. See {@link UpdateType}
+     * @param callback The callback instance to notify when the Updater has finished
+     */
+    public Updater(Plugin plugin, int id, File file, UpdateType type, UpdateCallback callback) {
+        this(plugin, id, file, type, callback, false);
+    }
+
+    /**
+     * Initialize the updater with the provided callback.
+     *
+     * @param plugin   The plugin that is checking for an update.
+     * @param id       The dev.bukkit.org id of the project.
+     * @param file     The file that the plugin is running from, get this by doing this.getFile() from within your main class.
+     * @param type     Specify the type of update this will be. See {@link UpdateType}
+     * @param callback The callback instance to notify when the Updater has finished
+     * @param announce True if the program should announce the progress of new updates in console.
+     */
+    public Updater(Plugin plugin, int id, File file, UpdateType type, UpdateCallback callback, boolean announce) {
+        this(plugin, id, file, type, callback, announce, false);
+    }
+
+    /**
+     * Register a project for update plans without checking for an update now. The project is checked, without downloading
+     * anything, each time an {@link UpdatePlan} is made, and the plan's findings become this Updater's result and latest
+     * version details. The findings are also added to plugins/Updater/plan.json, alongside every other plugin's.
+     *
+     * @param plugin The plugin that is checking for an update.
+     * @param id     The dev.bukkit.org id of the project.
+     * @param file   The file that the plugin is running from, get this by doing this.getFile() from within your main class.
+     * @param type   Specify the type of update this will be. See {@link UpdateType}
+     * @return the registered Updater.
+     */
+    public static Updater forPlan(Plugin plugin, int id, File file, UpdateType type) {
+        return new Updater(plugin, id, file, type, null, false, true);
+    }
+
+    private Updater(Plugin plugin, int id, File file, UpdateType type, UpdateCallback callback, boolean announce, boolean planOnly) {
+        super(plugin.getLogger(), id, file, plugin.getServer().getUpdateFolderFile(), type, announce);
+        this.plugin = plugin;
+        this.callback = callback;
+
+        final File pluginFile = this.plugin.getDataFolder().getParentFile();
+        final File updaterFile = new File(pluginFile, "Updater");
+        final File updaterConfigFile = new File(updaterFile, "config.yml");
+        this.configFile = updaterConfigFile;
+
+        YamlConfiguration config = new YamlConfiguration();
+        config.options().header("This configuration file affects all plugins using the Updater system (version 2+ - http://forums.bukkit.org/threads/96681/ )" + '\n'
+                + "If you wish to use your API key, read http://wiki.bukkit.org/ServerMods_API and place it below." + '\n'
+                + "Some updating systems will not adhere to the disabled value, but these may be turned off in their plugin's configuration." + '\n'
+                + "Downloaded updates waiting for a restart are removed once they are older than retention.max-age-days, or once they take up more than retention.max-size-mb." + '\n'
+                + "To only accept signed updates for a plugin, list the SHA-256 fingerprints of its author's public keys under " + TRUSTED_KEYS_CONFIG_KEY + ".<plugin name>." + '\n'
+                + "Zip updates for those plugins are rejected unless they contain nothing but signed jars." + '\n'
+                + "What every plugin's last update check found is written to " + PLAN_FILE + " in this folder.");
+        config.addDefault(API_KEY_CONFIG_KEY, API_KEY_DEFAULT);
+        config.addDefault(DISABLE_CONFIG_KEY, DISABLE_DEFAULT);
+        config.addDefault(RETENTION_DAYS_CONFIG_KEY, RETENTION_DAYS_DEFAULT);
+        config.addDefault(RETENTION_SIZE_CONFIG_KEY, RETENTION_SIZE_DEFAULT);
+
+        if (!updaterFile.exists()) {
+            this.fileIOOrError(updaterFile, updaterFile.mkdir(), true);
+        }
+
+        boolean createFile = !updaterConfigFile.exists();
+        try {
+            if (createFile) {
+                this.fileIOOrError(updaterConfigFile, updaterConfigFile.createNewFile(), true);
+                config.options().copyDefaults(true);
+                config.save(updaterConfigFile);
+            } else {
+                config.load(updaterConfigFile);
+            }
+        } catch (final Exception e) {
+            final String message;
+            if (createFile) {
+                message = "The updater could not create configuration at " + updaterFile.getAbsolutePath();
+            } else {
+                message = "The updater could not load configuration at " + updaterFile.getAbsolutePath();
+            }
+            this.plugin.getLogger().log(Level.SEVERE, message, e);
+        }
+
+        if (config.getBoolean(DISABLE_CONFIG_KEY)) {
+            this.disable();
+            return;
+        }
+
+        String key = config.getString(API_KEY_CONFIG_KEY);
+        if (API_KEY_DEFAULT.equalsIgnoreCase(key) || "".equals(key)) {
+            key = null;
+        }
+
+        final List<String> fingerprints = config.getStringList(TRUSTED_KEYS_CONFIG_KEY + "." + this.plugin.getName());
+        if (fingerprints != null && !fingerprints.isEmpty()) {
+            this.requireSignature(fingerprints, new File(updaterFile, VERIFIED_CACHE_FILE));
+        }
+
+        this.shareHostHealth(new File(updaterFile, HOSTS_FILE));
+
+        final long maxAge = config.getInt(RETENTION_DAYS_CONFIG_KEY) * 86400000L;
+        final long maxSize = config.getInt(RETENTION_SIZE_CONFIG_KEY) * 1048576L;
+        this.enableHousekeeping(new File(updaterFile, MANIFEST_FILE), maxAge, maxSize);
+
+        this.publishPlan(new File(updaterFile, PLAN_FILE));
+
+        Updater.unregisterOnDisable(this.plugin, id);
+        if (planOnly) {
+            this.register(key);
+        } else {
+            this.start(key);
+        }
+    }
+
+    /**
+     * Drop a project from update plans when its plugin is disabled, such as on /reload.
+     *
+     * @param plugin the plugin running Updater.
+     * @param id     the dev.bukkit.org id of the project.
+     */
+    private static void unregisterOnDisable(Plugin plugin, int id) {
+        if (!plugin.isEnabled()) {
+            // Bukkit won't register listeners for a plugin that isn't enabled yet, such as in onLoad
+            return;
+        }
+        synchronized (Updater.LISTENERS) {
+            DisableListener listener = Updater.LISTENERS.get(plugin.getName());
+            if ((listener == null) || (listener.plugin != plugin)) {
+                listener = new DisableListener(plugin, plugin.getServer().getUpdateFolderFile());
+                plugin.getServer().getPluginManager().registerEvents(listener, plugin);
+                Updater.LISTENERS.put(plugin.getName(), listener);
+            }
+            listener.ids.add(id);
+        }
+    }
+
+    @Override
+    protected String getLocalVersion() {
+        return this.plugin.getDescription().getVersion();
+    }
+
+    @Override
+    protected List<String> getAuthors() {
+        return this.plugin.getDescription().getAuthors();
+    }
+
+    @Override
+    protected String getPluginName() {
+        return this.plugin.getName();
+    }
+
+    @Override
+    protected String getConfigurationLocation() {
+        return this.configFile.getPath();
+    }
+
+    @Override
+    protected File getPluginsFolder() {
+        return this.plugin.getDataFolder().getParentFile();
+    }
+
+    @Override
+    protected void finish() {
+        if (this.callback != null) {
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    runCallback();
+                }
+            }.runTask(this.plugin);
+        }
+    }
+
+    /**
+     * Called on main thread when the Updater has finished working, regardless
+     * of result.
+     */
+    public interface UpdateCallback {
+        /**
+         * Called when the updater has finished working.
+         * @param updater The updater instance
+         */
+        void onFinish(Updater updater);
+    }
+
+    private void runCallback() {
+        this.callback.onFinish(this);
+    }
+
+    /**
+     * Unregisters a plugin's projects from update plans when it is disabled.
+     * Doesn't hold on to any Updater, so a disabled plugin's Updaters can be collected.
+     */
+    private static final class DisableListener implements Listener {
+        private final Plugin plugin;
+        private final File updateFolder;
+        // Guarded by LISTENERS
+        private final Set<Integer> ids = new HashSet<Integer>();
+
+        private DisableListener(Plugin plugin, File updateFolder) {
+            this.plugin = plugin;
+            this.updateFolder = updateFolder;
+        }
+
+        @EventHandler
+        public void onPluginDisable(PluginDisableEvent event) {
+            if (event.getPlugin() != this.plugin) {
+                return;
+            }
+            synchronized (Updater.LISTENERS) {
+                for (final int id : this.ids) {
+                    AbstractUpdater.unregister(this.updateFolder, id);
+                }
+                // Bukkit drops the plugin's listeners once it is disabled, so the next enable needs a new one
+                if (Updater.LISTENERS.get(this.plugin.getName()) == this) {
+                    Updater.LISTENERS.remove(this.plugin.getName());
+                }
+            }
+        }
+    }
+}
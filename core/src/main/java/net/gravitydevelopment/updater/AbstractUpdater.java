@@ -0,0 +1,1287 @@
+package net.gravitydevelopment.updater;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+/**
+ * The platform-neutral check, download and install pipeline behind the Bukkit {@code Updater}.
+ * <p>
+ * This class has no dependency on Bukkit. A platform adapter supplies the plugin's version, authors and plugins folder,
+ * decides how configuration is loaded, and calls {@link #start(String)} once it is ready for the update process to begin,
+ * or {@link #register(String)} to leave checking to {@link UpdatePlan}.
+ * {@link #finish()} is called on the update thread when the process is complete, regardless of result.
+ * </p>
+ *
+ * @author Gravity
+ * @version 3.0
+ */
+
+public abstract class AbstractUpdater {
+
+    /* Constants */
+
+    // Remote file's title
+    private static final String TITLE_VALUE = "name";
+    // Remote file's download link
+    private static final String LINK_VALUE = "downloadUrl";
+    // Remote file's release type
+    private static final String TYPE_VALUE = "releaseType";
+    // Remote file's build version
+    private static final String VERSION_VALUE = "gameVersion";
+    // Remote file's md5 checksum
+    private static final String MD5_VALUE = "md5";
+    // Path to GET
+    private static final String QUERY = "/servermods/files?projectIds=";
+    // Slugs will be appended to this to get to the project's RSS feed
+    private static final String HOST = "https://api.curseforge.com";
+    // User-agent when querying Curse
+    private static final String USER_AGENT = "Updater (by Gravity)";
+    // Used for locating version numbers in file names
+    private static final String DELIMETER = "^v|[\\s_-]v";
+    // If the version number contains one of these, don't update.
+    private static final String[] NO_UPDATE_TAG = { "-DEV", "-PRE", "-SNAPSHOT" };
+    // Used for downloading files
+    private static final int BYTE_SIZE = 1024;
+    // Appended to a download's name until it is complete and verified
+    private static final String PART_SUFFIX = ".part";
+    // Circuit breakers shared by every Updater instance, keyed by state file and host
+    private static final ConcurrentMap<String, HostBreaker> BREAKERS = new ConcurrentHashMap<String, HostBreaker>();
+    // Every started Updater, keyed by update folder and project id, for building update plans
+    private static final ConcurrentMap<String, AbstractUpdater> REGISTERED = new ConcurrentHashMap<String, AbstractUpdater>();
+
+    /* User-provided variables */
+
+    // Logger for the plugin running Updater
+    private final Logger logger;
+    // Type of update check to run
+    private final UpdateType type;
+    // Whether to announce file downloads
+    private final boolean announce;
+    // The plugin file (jar)
+    private final File file;
+    // The folder that downloads will be placed in
+    private final File updateFolder;
+    // Project's Curse ID
+    private int id = -1;
+    // BukkitDev ServerMods API key
+    private String apiKey = null;
+    // Checks downloads against the author's pinned keys (if required)
+    private ArtifactVerifier verifier = null;
+    // Cleans up the update folder (if enabled)
+    private Housekeeper housekeeper = null;
+    // Shares circuit breaker state with other copies of Updater (if set)
+    private File hostsFile = null;
+    // Report that every check's findings are added to (if set)
+    private File planFile = null;
+
+    /* Collected from Curse API */
+
+    private String versionName;
+    private String versionLink;
+    private String versionType;
+    private String versionGameVersion;
+    private String versionMd5;
+
+    /* Update process variables */
+
+    // Connection to RSS
+    private URL url;
+    // Updater thread
+    private Thread thread;
+    // Used for determining the outcome of the update process
+    private UpdateResult result = UpdateResult.SUCCESS;
+    // Entries of a zip update verified while it downloaded, checked against the jars extracted from it
+    private ArtifactVerifier.Listing verifiedZip = null;
+    // SHA-256 of that zip, remembered once its jars have been checked
+    private String verifiedZipSha256 = null;
+
+    /**
+     * Gives the developer the result of the update process. Can be obtained by called {@link #getResult()}
+     */
+    public enum UpdateResult {
+        /**
+         * The updater found an update, and has readied it to be loaded the next time the server restarts/reloads.
+         */
+        SUCCESS,
+        /**
+         * The updater did not find an update, and nothing was downloaded.
+         */
+        NO_UPDATE,
+        /**
+         * The server administrator has disabled the updating system.
+         */
+        DISABLED,
+        /**
+         * The updater found an update, but was unable to download it.
+         */
+        FAIL_DOWNLOAD,
+        /**
+         * For some reason, the updater was unable to contact dev.bukkit.org to download the file.
+         */
+        FAIL_DBO,
+        /**
+         * When running the version check, the file on DBO did not contain a recognizable version.
+         */
+        FAIL_NOVERSION,
+        /**
+         * The id provided by the plugin running the updater was invalid and doesn't exist on DBO.
+         */
+        FAIL_BADID,
+        /**
+         * The server administrator has improperly configured their API key in the configuration.
+         */
+        FAIL_APIKEY,
+        /**
+         * The updater downloaded an update, but it was not signed by a key the server administrator trusts, so it was discarded.
+         */
+        FAIL_SIGNATURE,
+        /**
+         * The updater found an update, but because of the UpdateType being set to NO_DOWNLOAD, it wasn't downloaded.
+         */
+        UPDATE_AVAILABLE
+    }
+
+    /**
+     * Allows the developer to specify the type of update that will be run.
+     */
+    public enum UpdateType {
+        /**
+         * Run a version check, and then if the file is out of date, download the newest version.
+         */
+        DEFAULT,
+        /**
+         * Don't run a version check, just find the latest update and download it.
+         */
+        NO_VERSION_CHECK,
+        /**
+         * Get information about the version and the download size, but don't actually download anything.
+         */
+        NO_DOWNLOAD
+    }
+
+    /**
+     * Represents the various release types of a file on BukkitDev.
+     */
+    public enum ReleaseType {
+        /**
+         * An "alpha" file.
+         */
+        ALPHA,
+        /**
+         * A "beta" file.
+         */
+        BETA,
+        /**
+         * A "release" file.
+         */
+        RELEASE
+    }
+
+    /**
+     * Initialize the update pipeline. Nothing is checked or downloaded until {@link #start(String)} is called.
+     *
+     * @param logger       The logger to report progress and errors to.
+     * @param id           The dev.bukkit.org id of the project.
+     * @param file         The file that the plugin is running from.
+     * @param updateFolder The folder that downloads will be placed in.
+     * @param type         Specify the type of update this will be. See {@link UpdateType}
+     * @param announce     True if the program should announce the progress of new updates in console.
+     */
+    protected AbstractUpdater(Logger logger, int id, File file, File updateFolder, UpdateType type, boolean announce) {
+        this.logger = logger;
+        this.id = id;
+        this.file = file;
+        this.updateFolder = updateFolder;
+        this.type = type;
+        this.announce = announce;
+    }
+
+    /**
+     * Begin the update process on a new thread.
+     *
+     * @param apiKey the ServerMods API key to send, or null to send none.
+     */
+    protected final void start(String apiKey) {
+        synchronized (this) {
+            // Held until the thread is running, so a plan made in the meantime waits for it rather than checking separately
+            this.register(apiKey);
+            if (this.result != UpdateResult.FAIL_BADID) {
+                this.thread = new Thread(new UpdateRunnable());
+                this.thread.start();
+                return;
+            }
+        }
+        runUpdater();
+    }
+
+    /**
+     * Make the project available to {@link UpdatePlan} without checking for an update now. The project is checked, without
+     * downloading anything, each time a plan is made, and the plan's findings become this Updater's result and latest
+     * version details. Call this instead of {@link #start(String)}.
+     *
+     * @param apiKey the ServerMods API key to send, or null to send none.
+     */
+    protected final void register(String apiKey) {
+        this.apiKey = apiKey;
+
+        try {
+            this.url = new URL(AbstractUpdater.HOST + AbstractUpdater.QUERY + this.id);
+        } catch (final MalformedURLException e) {
+            this.logger.log(Level.SEVERE, "The project ID provided for updating, " + this.id + " is invalid.", e);
+            this.result = UpdateResult.FAIL_BADID;
+        }
+
+        if (this.housekeeper != null) {
+            this.housekeeper.requestRun();
+        }
+
+        if (this.result != UpdateResult.FAIL_BADID) {
+            AbstractUpdater.REGISTERED.put(AbstractUpdater.registryKey(this.updateFolder, this.id), this);
+        }
+    }
+
+    /**
+     * Require downloads to be signed by one of the given keys. Must be called before {@link #start(String)}.
+     *
+     * @param fingerprints hex SHA-256 fingerprints of the public keys the plugin's author signs releases with.
+     * @param cacheFile    the file that verification results are remembered in between runs.
+     */
+    protected final void requireSignature(List<String> fingerprints, File cacheFile) {
+        this.verifier = new ArtifactVerifier(fingerprints, cacheFile);
+    }
+
+    /**
+     * Clean up files this Updater leaves in the update folder in the background. Must be called before {@link #start(String)}.
+     *
+     * @param manifestFile the file that files written to the update folder are recorded in.
+     * @param maxAge       how long a downloaded update is kept waiting for a restart, in milliseconds.
+     * @param maxSize      how many bytes of downloaded updates are kept waiting for a restart.
+     */
+    protected final void enableHousekeeping(File manifestFile, long maxAge, long maxSize) {
+        this.housekeeper = Housekeeper.forFolder(this.updateFolder, manifestFile, this.logger, maxAge, maxSize);
+    }
+
+    /**
+     * Share circuit breaker state and latency samples with every other copy of Updater through a file, so that hosts that
+     * are failing for one plugin fail fast for all of them. Must be called before {@link #start(String)}.
+     *
+     * @param hostsFile the file that host health is kept in.
+     */
+    protected final void shareHostHealth(File hostsFile) {
+        this.hostsFile = hostsFile;
+    }
+
+    /**
+     * Add the findings of every check this Updater makes to a JSON report shared with every other copy of Updater, in the
+     * format of {@link UpdatePlan#write(File)}. Must be called before {@link #start(String)}.
+     *
+     * @param planFile the report to add to.
+     */
+    protected final void publishPlan(File planFile) {
+        this.planFile = planFile;
+    }
+
+    /**
+     * Mark the update process as disabled by the server administrator. {@link #start(String)} should not be called afterwards.
+     */
+    protected final void disable() {
+        this.result = UpdateResult.DISABLED;
+    }
+
+    /**
+     * Get the version of the plugin that is currently running.
+     *
+     * @return the local version.
+     */
+    protected abstract String getLocalVersion();
+
+    /**
+     * Get the authors of the plugin that is currently running.
+     *
+     * @return the plugin's authors, which may be empty.
+     */
+    protected abstract List<String> getAuthors();
+
+    /**
+     * Get the folder that installed plugins, and their data folders, live in.
+     *
+     * @return the plugins folder.
+     */
+    protected abstract File getPluginsFolder();
+
+    /**
+     * Called on the update thread when the Updater has finished working, regardless of result.
+     */
+    protected abstract void finish();
+
+    /**
+     * Get the dev.bukkit.org id of the project.
+     *
+     * @return the project id.
+     */
+    int getProjectId() {
+        return this.id;
+    }
+
+    /**
+     * Get the folder that downloads are placed in.
+     *
+     * @return the update folder.
+     */
+    File getUpdateFolder() {
+        return this.updateFolder;
+    }
+
+    /**
+     * Get the name of the plugin that is checking for an update, used in update plans.
+     *
+     * @return the plugin's name.
+     */
+    protected String getPluginName() {
+        return this.file.getName();
+    }
+
+    /**
+     * Get where the server administrator configures Updater, used to point them at their API key when it is rejected.
+     *
+     * @return a description of the configuration's location, or null if there is nothing to point to.
+     */
+    protected String getConfigurationLocation() {
+        return null;
+    }
+
+    /**
+     * Get the logger that progress and errors are reported to.
+     *
+     * @return the logger.
+     */
+    protected Logger getLogger() {
+        return this.logger;
+    }
+
+    /**
+     * Get the result of the update process.
+     *
+     * @return result of the update process.
+     * @see UpdateResult
+     */
+    public UpdateResult getResult() {
+        this.waitForThread();
+        return this.result;
+    }
+
+    /**
+     * Get the latest version's release type.
+     *
+     * @return latest version's release type.
+     * @see ReleaseType
+     */
+    public ReleaseType getLatestType() {
+        this.waitForThread();
+        if (this.versionType != null) {
+            for (ReleaseType type : ReleaseType.values()) {
+                if (this.versionType.equalsIgnoreCase(type.name())) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the latest version's game version (such as "CB 1.2.5-R1.0").
+     *
+     * @return latest version's game version.
+     */
+    public String getLatestGameVersion() {
+        this.waitForThread();
+        return this.versionGameVersion;
+    }
+
+    /**
+     * Get the latest version's name (such as "Project v1.0").
+     *
+     * @return latest version's name.
+     */
+    public String getLatestName() {
+        this.waitForThread();
+        return this.versionName;
+    }
+
+    /**
+     * Get the latest version's direct file link.
+     *
+     * @return latest version's file link.
+     */
+    public String getLatestFileLink() {
+        this.waitForThread();
+        return this.versionLink;
+    }
+
+    /**
+     * As the result of Updater output depends on the thread's completion, it is necessary to wait for the thread to finish
+     * before allowing anyone to check the result.
+     */
+    private void waitForThread() {
+        if ((this.thread != null) && this.thread.isAlive()) {
+            try {
+                this.thread.join();
+            } catch (final InterruptedException e) {
+                this.logger.log(Level.SEVERE, null, e);
+            }
+        }
+    }
+
+    /**
+     * Save an update from dev.bukkit.org into the server's update folder.
+     *
+     * @param file the name of the file to save it as.
+     */
+    private void saveFile(String file) {
+        final File folder = this.updateFolder;
+
+        if (!folder.exists()) {
+            this.fileIOOrError(folder, folder.mkdir(), true);
+        }
+        // Check to see if it's a zip file, if it is, unzip it.
+        final File dFile = new File(folder.getAbsolutePath(), file);
+        if (!downloadFile(dFile)) {
+            return;
+        }
+        if (dFile.getName().endsWith(".zip")) {
+            // Unzip
+            this.unzip(dFile.getAbsolutePath());
+        }
+        if (this.announce) {
+            this.logger.info("Finished updating.");
+        }
+    }
+
+    /**
+     * Download a file and save it to the specified folder.
+     * <p>
+     * The file is written under a temporary name, and only renamed into place once it is complete and, if signatures are
+     * required, verified.
+     * </p>
+     *
+     * @param target the file to save the download as.
+     * @return true if the download was saved.
+     */
+    private boolean downloadFile(File target) {
+        final File part = new File(target.getParentFile(), target.getName() + AbstractUpdater.PART_SUFFIX);
+        HostBreaker breaker = null;
+        DownloadStream in = null;
+        FileOutputStream fout = null;
+        try {
+            // The body is read from the connection that answered, resolve() has already recorded its response
+            final HttpURLConnection conn = this.resolve(this.versionLink, "GET");
+            breaker = this.breakerFor(conn.getURL());
+            final InputStream body;
+            try {
+                body = conn.getInputStream();
+            } catch (final IOException e) {
+                // Such as a 404, which isn't the host failing
+                conn.disconnect();
+                throw e;
+            }
+            final int fileLength = conn.getContentLength();
+            // Both digests are computed while the download is saved, so the file is never read just to hash it
+            final MessageDigest md5 = MessageDigest.getInstance("MD5");
+            final MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            this.track(part, Housekeeper.Kind.PARTIAL);
+            fout = new FileOutputStream(part);
+            in = new DownloadStream(new DigestInputStream(new DigestInputStream(new BufferedInputStream(body), md5), sha256), fout, fileLength);
+
+            if (this.announce) {
+                this.logger.info("About to download a new update: " + this.versionName);
+            }
+            // Verification reads through the same stream that is being saved, so the file is only read once
+            final boolean zip = target.getName().endsWith(".zip");
+            final String verifiedSha256 = (this.verifier != null) ? this.verifier.verifiedSha256(this.versionMd5) : null;
+            ArtifactVerifier.Listing listing = null;
+            if ((this.verifier != null) && (verifiedSha256 == null)) {
+                listing = this.verifier.verify(in, zip, target.getName());
+            }
+            final byte[] data = new byte[AbstractUpdater.BYTE_SIZE];
+            while (in.read(data, 0, AbstractUpdater.BYTE_SIZE) != -1) {
+                // Saved by DownloadStream
+            }
+            fout.close();
+            fout = null;
+
+            final String md5Digest = ArtifactVerifier.toHex(md5.digest());
+            if ((this.versionMd5 != null) && !md5Digest.equalsIgnoreCase(this.versionMd5)) {
+                throw new IOException("The downloaded file's md5 " + md5Digest + " does not match " + this.versionMd5);
+            }
+
+            if (this.verifier != null) {
+                final String sha256Digest = ArtifactVerifier.toHex(sha256.digest());
+                if (listing == null) {
+                    // Skipped verification, so this must be the very artifact that passed it before
+                    if (!sha256Digest.equalsIgnoreCase(verifiedSha256)) {
+                        throw new SecurityException("The update's SHA-256 " + sha256Digest + " does not match the verified " + verifiedSha256);
+                    }
+                } else {
+                    // The server loads the entries listed in the central directory, which must be the ones that were verified
+                    this.verifier.checkCentralDirectory(part, listing, target.getName());
+                    if (zip) {
+                        this.verifiedZip = listing;
+                        this.verifiedZipSha256 = sha256Digest;
+                    } else {
+                        this.rememberVerified(sha256Digest);
+                    }
+                }
+            }
+
+            if (target.exists()) {
+                this.fileIOOrError(target, target.delete(), false);
+            }
+            this.track(target, Housekeeper.Kind.ARTIFACT);
+            this.fileIOOrError(target, part.renameTo(target), true);
+            return true;
+        } catch (SecurityException ex) {
+            this.logger.log(Level.SEVERE, "The auto-updater downloaded a new update, but it could not be verified and was discarded.", ex);
+            this.result = UpdateResult.FAIL_SIGNATURE;
+        } catch (Exception ex) {
+            this.logger.log(Level.WARNING, "The auto-updater tried to download a new update, but was unsuccessful.", ex);
+            this.result = UpdateResult.FAIL_DOWNLOAD;
+        } finally {
+            // Failures reading the body count against the host, anything else (such as a bad signature) doesn't
+            if ((breaker != null) && (in != null) && in.isBroken()) {
+                breaker.recordFailure();
+            }
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } catch (final IOException ex) {
+                this.logger.log(Level.SEVERE, null, ex);
+            }
+            try {
+                if (fout != null) {
+                    fout.close();
+                }
+            } catch (final IOException ex) {
+                this.logger.log(Level.SEVERE, null, ex);
+            }
+            if (part.exists()) {
+                this.fileIOOrError(part, part.delete(), false);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remember that the update passed verification, so it isn't verified again if it is downloaded again.
+     *
+     * @param sha256 the hex SHA-256 of the update's contents.
+     */
+    private void rememberVerified(String sha256) {
+        if (this.versionMd5 == null) {
+            // Nothing to find it by before it is downloaded
+            return;
+        }
+        try {
+            this.verifier.remember(this.versionMd5, sha256);
+        } catch (final IOException e) {
+            // The update is still good, it will just be verified again next time
+            this.logger.log(Level.WARNING, "The updater could not remember that this update was verified.", e);
+        }
+    }
+
+    /**
+     * Follow redirects from a location, recording the outcome of every hop with its host's circuit breaker.
+     *
+     * @param location the location to start from.
+     * @param method   the request method to send to every hop.
+     * @return the connection to the final hop, which has already responded and must be disconnected by the caller.
+     * @throws IOException if a hop could not be reached, responded with a server error, or redirected somewhere other than http.
+     */
+    private HttpURLConnection resolve(String location, String method) throws IOException {
+        URL resourceUrl, base, next;
+        HttpURLConnection conn;
+        HostBreaker breaker;
+        String redLoc;
+        int responseCode;
+        while (true) {
+            resourceUrl = new URL(location);
+            breaker = this.breakerFor(resourceUrl);
+            if (!breaker.allowRequest()) {
+                throw new IOException("Requests to " + resourceUrl.getHost() + " are suspended after repeated failures");
+            }
+
+            final long start = System.currentTimeMillis();
+            boolean healthy = false;
+            conn = null;
+            try {
+                final URLConnection opened = resourceUrl.openConnection();
+                if (!(opened instanceof HttpURLConnection)) {
+                    throw new IOException("Refusing to follow a redirect to " + location);
+                }
+                conn = (HttpURLConnection) opened;
+
+                conn.setConnectTimeout(breaker.getTimeout());
+                conn.setReadTimeout(breaker.getTimeout());
+                conn.setInstanceFollowRedirects(false);
+                conn.setRequestMethod(method);
+                conn.setRequestProperty("User-Agent", "Mozilla/5.0...");
+
+                responseCode = conn.getResponseCode();
+                healthy = responseCode < HttpURLConnection.HTTP_INTERNAL_ERROR;
+            } finally {
+                // Every exit has to record an outcome, or a half-open probe would never finish
+                if (healthy) {
+                    breaker.recordSuccess(System.currentTimeMillis() - start);
+                } else {
+                    breaker.recordFailure();
+                    if (conn != null) {
+                        conn.disconnect();
+                    }
+                }
+            }
+            if (!healthy) {
+                throw new IOException(resourceUrl.getHost() + " responded with HTTP " + responseCode);
+            }
+
+            switch (responseCode) {
+                case HttpURLConnection.HTTP_MOVED_PERM:
+                case HttpURLConnection.HTTP_MOVED_TEMP:
+                    redLoc = conn.getHeaderField("Location");
+                    conn.disconnect();
+                    base = new URL(location);
+                    next = new URL(base, redLoc);  // Deal with relative URLs
+                    location = next.toExternalForm();
+                    continue;
+            }
+            break;
+        }
+        return conn;
+    }
+
+    /**
+     * Part of Zip-File-Extractor, modified by Gravity for use with Updater.
+     *
+     * @param file the location of the file to extract.
+     */
+    private void unzip(String file) {
+        final File fSourceZip = new File(file);
+        final String zipPath = file.substring(0, file.length() - 4);
+        this.track(new File(zipPath), Housekeeper.Kind.EXTRACTED);
+        try {
+            // Jars aren't moved into place until every one of them has been checked
+            final Map<String, File> jars = new LinkedHashMap<String, File>();
+            ZipFile zipFile = new ZipFile(fSourceZip);
+            Enumeration<? extends ZipEntry> e = zipFile.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry entry = e.nextElement();
+                File destinationFilePath = new File(zipPath, entry.getName());
+                this.fileIOOrError(destinationFilePath.getParentFile(), destinationFilePath.getParentFile().mkdirs(), true);
+                if (!entry.isDirectory()) {
+                    final BufferedInputStream bis = new BufferedInputStream(zipFile.getInputStream(entry));
+                    int b;
+                    final byte[] buffer = new byte[AbstractUpdater.BYTE_SIZE];
+                    final FileOutputStream fos = new FileOutputStream(destinationFilePath);
+                    final BufferedOutputStream bos = new BufferedOutputStream(fos, AbstractUpdater.BYTE_SIZE);
+                    while ((b = bis.read(buffer, 0, AbstractUpdater.BYTE_SIZE)) != -1) {
+                        bos.write(buffer, 0, b);
+                    }
+                    bos.flush();
+                    bos.close();
+                    bis.close();
+                    if (entry.getName().endsWith(".jar")) {
+                        jars.put(entry.getName(), destinationFilePath);
+                    }
+                }
+            }
+            zipFile.close();
+
+            if (this.verifiedZip != null) {
+                for (final Map.Entry<String, File> jar : jars.entrySet()) {
+                    this.verifier.checkCentralDirectory(jar.getValue(), this.verifiedZip.jar(jar.getKey()), jar.getKey());
+                }
+                this.rememberVerified(this.verifiedZipSha256);
+            }
+            for (final File jar : jars.values()) {
+                final String name = jar.getName();
+                if (this.pluginExists(name)) {
+                    File output = new File(this.updateFolder, name);
+                    this.track(output, Housekeeper.Kind.ARTIFACT);
+                    this.fileIOOrError(output, jar.renameTo(output), true);
+                }
+            }
+
+            // Move any plugin data folders that were included to the right place, Bukkit won't do this for us.
+            moveNewZipFiles(zipPath);
+
+        } catch (final SecurityException e) {
+            this.logger.log(Level.SEVERE, "The auto-updater downloaded a new update, but it could not be verified and was discarded.", e);
+            this.result = UpdateResult.FAIL_SIGNATURE;
+            this.fileIOOrError(new File(zipPath), Housekeeper.delete(new File(zipPath)), false);
+        } catch (final IOException e) {
+            this.logger.log(Level.SEVERE, "The auto-updater tried to unzip a new update file, but was unsuccessful.", e);
+            this.result = UpdateResult.FAIL_DOWNLOAD;
+        } finally {
+            this.verifiedZip = null;
+            this.verifiedZipSha256 = null;
+            this.fileIOOrError(fSourceZip, fSourceZip.delete(), false);
+        }
+    }
+
+    /**
+     * Find any new files extracted from an update into the plugin's data directory.
+     * @param zipPath path of extracted files.
+     */
+    private void moveNewZipFiles(String zipPath) {
+        File[] list = listFilesOrError(new File(zipPath));
+        for (final File dFile : list) {
+            if (dFile.isDirectory() && this.pluginExists(dFile.getName())) {
+                // Current dir
+                final File oFile = new File(this.getPluginsFolder(), dFile.getName());
+                // List of existing files in the new dir
+                final File[] dList = listFilesOrError(dFile);
+                // List of existing files in the current dir
+                final File[] oList = listFilesOrError(oFile);
+                for (File cFile : dList) {
+                    // Loop through all the files in the new dir
+                    boolean found = false;
+                    for (final File xFile : oList) {
+                        // Loop through all the contents in the current dir to see if it exists
+                        if (xFile.getName().equals(cFile.getName())) {
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        // Move the new file into the current dir
+                        File output = new File(oFile, cFile.getName());
+                        this.fileIOOrError(output, cFile.renameTo(output), true);
+                    } else {
+                        // This file already exists, so we don't need it anymore.
+                        this.fileIOOrError(cFile, cFile.delete(), false);
+                    }
+                }
+            }
+            this.fileIOOrError(dFile, dFile.delete(), false);
+        }
+        File zip = new File(zipPath);
+        this.fileIOOrError(zip, zip.delete(), false);
+    }
+
+    /**
+     * Check if the name of a jar is one of the plugins currently installed, used for extracting the correct files out of a zip.
+     *
+     * @param name a name to check for inside the plugins folder.
+     * @return true if a file inside the plugins folder is named this.
+     */
+    private boolean pluginExists(String name) {
+        File[] plugins = listFilesOrError(this.getPluginsFolder());
+        for (final File file : plugins) {
+            if (file.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check to see if the program should continue by evaluating whether the plugin is already updated, or shouldn't be updated.
+     *
+     * @return true if the version was located and is not the same as the remote's newest.
+     */
+    private boolean versionCheck() {
+        final String title = this.versionName;
+        if (this.type != UpdateType.NO_VERSION_CHECK) {
+            final String localVersion = this.getLocalVersion();
+            final String remoteVersion = AbstractUpdater.parseVersion(title);
+            if (remoteVersion != null) {
+                if (this.hasTag(localVersion) || !this.shouldUpdate(localVersion, remoteVersion)) {
+                    // We already have the latest version, or this build is tagged for no-update
+                    this.result = UpdateResult.NO_UPDATE;
+                    return false;
+                }
+            } else {
+                // The file's name did not contain the string 'vVersion'
+                final List<String> authors = this.getAuthors();
+                final String authorInfo = authors.isEmpty() ? "" : " (" + authors.get(0) + ")";
+                this.logger.warning("The author of this plugin" + authorInfo + " has misconfigured their Auto Update system");
+                this.logger.warning("File versions should follow the format 'PluginName vVERSION'");
+                this.logger.warning("Please notify the author of this error.");
+                this.result = UpdateResult.FAIL_NOVERSION;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the version number from a remote file's title.
+     *
+     * @param title the remote file's title (such as "Project v1.0").
+     * @return the version, or null if the title doesn't contain one.
+     */
+    private static String parseVersion(String title) {
+        final String[] split = title.split(DELIMETER);
+        if (split.length < 2) {
+            return null;
+        }
+        return split[split.length - 1].split(" ")[0];
+    }
+
+    /**
+     * <b>If you wish to run mathematical versioning checks, edit this method.</b>
+     * <p>
+     * With default behavior, Updater will NOT verify that a remote version available on BukkitDev
+     * which is not this version is indeed an "update".
+     * If a version is present on BukkitDev that is not the version that is currently running,
+     * Updater will assume that it is a newer version.
+     * This is because there is no standard versioning scheme, and creating a calculation that can
+     * determine whether a new update is actually an update is sometimes extremely complicated.
+     * </p>
+     * <p>
+     * Updater will call this method from {@link #versionCheck()} before deciding whether
+     * the remote version is actually an update.
+     * If you have a specific versioning scheme with which a mathematical determination can
+     * be reliably made to decide whether one version is higher than another, you may
+     * revise this method, using the local and remote version parameters, to execute the
+     * appropriate check.
+     * </p>
+     * <p>
+     * Returning a value of <b>false</b> will tell the update process that this is NOT a new version.
+     * Without revision, this method will always consider a remote version at all different from
+     * that of the local version a new update.
+     * </p>
+     * @param localVersion the current version
+     * @param remoteVersion the remote version
+     * @return true if Updater should consider the remote version an update, false if not.
+     */
+    public boolean shouldUpdate(String localVersion, String remoteVersion) {
+        return !localVersion.equalsIgnoreCase(remoteVersion);
+    }
+
+    /**
+     * Evaluate whether the version number is marked showing that it should not be updated by this program.
+     *
+     * @param version a version number to check for tags in.
+     * @return true if updating should be disabled.
+     */
+    private boolean hasTag(String version) {
+        for (final String string : AbstractUpdater.NO_UPDATE_TAG) {
+            if (version.contains(string)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Make a connection to the BukkitDev API and request the newest file's details.
+     *
+     * @return true if successful.
+     */
+    private boolean read() {
+        final HostBreaker breaker = this.breakerFor(this.url);
+        if (!breaker.allowRequest()) {
+            this.logger.warning("The updater is not contacting dev.bukkit.org because it failed to respond to recent requests.");
+            this.result = UpdateResult.FAIL_DBO;
+            return false;
+        }
+        try {
+            final JSONArray array = this.query(breaker);
+
+            if (array.isEmpty()) {
+                this.logger.warning("The updater could not find any files for the project id " + this.id);
+                this.result = UpdateResult.FAIL_BADID;
+                return false;
+            }
+
+            JSONObject latestUpdate = (JSONObject) array.get(array.size() - 1);
+            this.versionName = (String) latestUpdate.get(AbstractUpdater.TITLE_VALUE);
+            this.versionLink = (String) latestUpdate.get(AbstractUpdater.LINK_VALUE);
+            this.versionType = (String) latestUpdate.get(AbstractUpdater.TYPE_VALUE);
+            this.versionGameVersion = (String) latestUpdate.get(AbstractUpdater.VERSION_VALUE);
+            this.versionMd5 = (String) latestUpdate.get(AbstractUpdater.MD5_VALUE);
+
+            return true;
+        } catch (final IOException e) {
+            if (AbstractUpdater.isKeyRejected(e)) {
+                final String location = this.getConfigurationLocation();
+                this.logger.severe("dev.bukkit.org rejected the API key" + ((location != null) ? " provided in " + location : ""));
+                this.logger.severe("Please double-check your configuration to ensure it is correct.");
+                this.result = UpdateResult.FAIL_APIKEY;
+            } else {
+                this.logger.severe("The updater could not contact dev.bukkit.org for updating.");
+                this.logger.severe("If you have not recently modified your configuration and this is the first time you are seeing this message, the site may be experiencing temporary downtime.");
+                this.result = UpdateResult.FAIL_DBO;
+            }
+            this.logger.log(Level.SEVERE, null, e);
+            return false;
+        }
+    }
+
+    /**
+     * Request the project's files from the BukkitDev API, recording the outcome with the API's circuit breaker.
+     *
+     * @param breaker the breaker for the API's host, which must have allowed the request.
+     * @return the project's files, oldest first.
+     * @throws IOException if the API could not be contacted or rejected the request.
+     */
+    private JSONArray query(HostBreaker breaker) throws IOException {
+        final long start = System.currentTimeMillis();
+        boolean answered = false;
+        try {
+            final URLConnection conn = this.url.openConnection();
+            conn.setConnectTimeout(breaker.getTimeout());
+            conn.setReadTimeout(breaker.getTimeout());
+
+            if (this.apiKey != null) {
+                conn.addRequestProperty("X-API-Key", this.apiKey);
+            }
+            conn.addRequestProperty("User-Agent", AbstractUpdater.USER_AGENT);
+
+            conn.setDoOutput(true);
+
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+            final String response = reader.readLine();
+            answered = true;
+
+            return (JSONArray) JSONValue.parse(response);
+        } catch (final IOException e) {
+            // The host answered if it rejected our key
+            answered = AbstractUpdater.isKeyRejected(e);
+            throw e;
+        } finally {
+            // Every exit has to record an outcome, or a half-open probe would never finish
+            if (answered) {
+                breaker.recordSuccess(System.currentTimeMillis() - start);
+            } else {
+                breaker.recordFailure();
+            }
+        }
+    }
+
+    private static boolean isKeyRejected(IOException e) {
+        return (e.getMessage() != null) && e.getMessage().contains("HTTP response code: 403");
+    }
+
+    /**
+     * Get this project's entry for an update plan. An Updater that has been started has already checked, so what it found is
+     * reported without asking the API again. One that was only registered checks now, without downloading anything.
+     *
+     * @return a report entry describing the current version, the candidate update and the decision made about it.
+     */
+    synchronized JSONObject plan() {
+        if (this.thread != null) {
+            this.waitForThread();
+            return this.describe();
+        }
+        this.result = UpdateResult.UPDATE_AVAILABLE;
+        if (this.read()) {
+            this.versionCheck();
+        }
+        final JSONObject entry = this.describe();
+        this.publish(entry);
+        return entry;
+    }
+
+    /**
+     * Describe what the last check found.
+     *
+     * @return a report entry describing the current version, the candidate update and the decision made about it.
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject describe() {
+        final JSONObject entry = new JSONObject();
+        entry.put("project-id", this.id);
+        entry.put("name", this.getPluginName());
+        entry.put("update-folder", this.updateFolder.getAbsolutePath());
+        entry.put("checked", System.currentTimeMillis());
+        entry.put("current-version", this.getLocalVersion());
+        entry.put("candidate-name", this.versionName);
+        entry.put("candidate-version", (this.versionName != null) ? AbstractUpdater.parseVersion(this.versionName) : null);
+        entry.put("release-type", this.versionType);
+        entry.put("game-version", this.versionGameVersion);
+        entry.put("md5", this.versionMd5);
+        entry.put("download-url", this.versionLink);
+        long size = -1;
+        if ((this.result == UpdateResult.UPDATE_AVAILABLE) && (this.versionLink != null)) {
+            size = this.contentLength(this.versionLink);
+        }
+        entry.put("download-size", size);
+        entry.put("decision", this.result.name());
+        entry.put("reason", this.reason());
+        return entry;
+    }
+
+    private String reason() {
+        switch (this.result) {
+            case SUCCESS:
+                return "The update was downloaded and is waiting for a restart";
+            case NO_UPDATE:
+                return this.hasTag(this.getLocalVersion()) ? "The current version is tagged as a development build" : "The current version is up to date";
+            case DISABLED:
+                return "Updating is disabled";
+            case FAIL_DOWNLOAD:
+                return "The update could not be downloaded";
+            case FAIL_DBO:
+                return "Could not contact dev.bukkit.org";
+            case FAIL_NOVERSION:
+                return "The latest file's name does not follow the format 'PluginName vVERSION'";
+            case FAIL_BADID:
+                return "No files were found for the project id";
+            case FAIL_APIKEY:
+                return "dev.bukkit.org rejected the API key";
+            case FAIL_SIGNATURE:
+                return "The update was not signed by a trusted key";
+            default:
+                return (this.type == UpdateType.NO_VERSION_CHECK) ? "Version checks are disabled for this project" : "The latest version is an update";
+        }
+    }
+
+    /**
+     * Add an entry to the shared report, if there is one.
+     *
+     * @param entry the entry to add.
+     */
+    private void publish(JSONObject entry) {
+        if (this.planFile == null) {
+            return;
+        }
+        try {
+            UpdatePlan.record(this.planFile, entry);
+        } catch (final IOException e) {
+            this.logger.log(Level.WARNING, "The updater could not write its report at " + this.planFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Find the size of a download without downloading it.
+     *
+     * @param location the download link.
+     * @return the size in bytes, or -1 if it couldn't be determined.
+     */
+    private long contentLength(String location) {
+        try {
+            final HttpURLConnection conn = this.resolve(location, "HEAD");
+            try {
+                final int code = conn.getResponseCode();
+                if ((code < HttpURLConnection.HTTP_OK) || (code >= HttpURLConnection.HTTP_MULT_CHOICE)) {
+                    // Anything else is the length of an error page
+                    return -1;
+                }
+                return conn.getContentLength();
+            } finally {
+                conn.disconnect();
+            }
+        } catch (final IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get every Updater that has been started or registered with this copy of Updater, one per project and update folder.
+     *
+     * @return the registered Updaters.
+     */
+    static Collection<AbstractUpdater> registered() {
+        return AbstractUpdater.REGISTERED.values();
+    }
+
+    /**
+     * Stop including a project in update plans, such as when the plugin that registered it is disabled.
+     *
+     * @param updateFolder the update folder the project's Updater was using.
+     * @param id           the dev.bukkit.org id of the project.
+     */
+    protected static void unregister(File updateFolder, int id) {
+        AbstractUpdater.REGISTERED.remove(AbstractUpdater.registryKey(updateFolder, id));
+    }
+
+    private static String registryKey(File updateFolder, int id) {
+        return updateFolder.getAbsolutePath() + ":" + id;
+    }
+
+    /**
+     * Record a file about to be written to the update folder, so that housekeeping knows Updater owns it.
+     *
+     * @param file the file being written.
+     * @param kind what the file is.
+     */
+    private void track(File file, Housekeeper.Kind kind) {
+        if (this.housekeeper != null) {
+            this.housekeeper.record(file, kind);
+        }
+    }
+
+    /**
+     * Get the circuit breaker shared by all Updater instances for the host of the given url.
+     *
+     * @param url the url about to be requested.
+     * @return the breaker for the url's host.
+     */
+    private HostBreaker breakerFor(URL url) {
+        final String host = url.getHost().toLowerCase();
+        final String key = ((this.hostsFile != null) ? this.hostsFile.getAbsolutePath() : "") + ":" + host;
+        HostBreaker breaker = AbstractUpdater.BREAKERS.get(key);
+        if (breaker == null) {
+            final HostBreaker created = new HostBreaker(host, this.hostsFile);
+            breaker = AbstractUpdater.BREAKERS.putIfAbsent(key, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Perform a file operation and log any errors if it fails.
+     * @param file file operation is performed on.
+     * @param result result of file operation.
+     * @param create true if a file is being created, false if deleted.
+     */
+    protected void fileIOOrError(File file, boolean result, boolean create) {
+        if (!result) {
+            this.logger.severe("The updater could not " + (create ? "create" : "delete") + " file at: " + file.getAbsolutePath());
+        }
+    }
+
+    private File[] listFilesOrError(File folder) {
+        File[] contents = folder.listFiles();
+        if (contents == null) {
+            this.logger.severe("The updater could not access files at: " + this.updateFolder.getAbsolutePath());
+            return new File[0];
+        } else {
+            return contents;
+        }
+    }
+
+    /**
+     * Saves everything read through it to a file, announcing progress as it goes.
+     */
+    private class DownloadStream extends FilterInputStream {
+        private final OutputStream out;
+        private final int length;
+        private long downloaded = 0;
+        private int announced = -1;
+        private boolean broken = false;
+
+        DownloadStream(InputStream in, OutputStream out, int length) {
+            super(in);
+            this.out = out;
+            this.length = length;
+        }
+
+        /**
+         * Check whether reading from the connection failed, as opposed to saving what was read.
+         *
+         * @return true if the connection failed.
+         */
+        boolean isBroken() {
+            return this.broken;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b;
+            try {
+                b = super.read();
+            } catch (final IOException e) {
+                this.broken = true;
+                throw e;
+            }
+            if (b != -1) {
+                this.out.write(b);
+                this.progress(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int count;
+            try {
+                count = super.read(b, off, len);
+            } catch (final IOException e) {
+                this.broken = true;
+                throw e;
+            }
+            if (count > 0) {
+                this.out.write(b, off, count);
+                this.progress(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes still have to be saved
+            final byte[] buffer = new byte[AbstractUpdater.BYTE_SIZE];
+            final int count = this.read(buffer, 0, (int) Math.min(n, AbstractUpdater.BYTE_SIZE));
+            return Math.max(count, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void progress(int count) {
+            this.downloaded += count;
+            if (!AbstractUpdater.this.announce || (this.length <= 0)) {
+                return;
+            }
+            final int percent = (int) ((this.downloaded * 100) / this.length);
+            if (((percent % 10) == 0) && (percent != this.announced)) {
+                this.announced = percent;
+                AbstractUpdater.this.logger.info("Downloading update: " + percent + "% of " + this.length + " bytes.");
+            }
+        }
+    }
+
+    private class UpdateRunnable implements Runnable {
+        @Override
+        public void run() {
+            runUpdater();
+        }
+    }
+
+    private void runUpdater() {
+        if (this.url != null && (this.read() && this.versionCheck())) {
+            // Obtain the results of the project's file feed
+            if ((this.versionLink != null) && (this.type != UpdateType.NO_DOWNLOAD)) {
+                String name = this.file.getName();
+                // If it's a zip file, it shouldn't be downloaded as the plugin's name
+                if (this.versionLink.endsWith(".zip")) {
+                    name = this.versionLink.substring(this.versionLink.lastIndexOf("/") + 1);
+                }
+                this.saveFile(name);
+            } else {
+                this.result = UpdateResult.UPDATE_AVAILABLE;
+            }
+        }
+
+        if (this.planFile != null) {
+            this.publish(this.describe());
+        }
+        this.finish();
+    }
+}
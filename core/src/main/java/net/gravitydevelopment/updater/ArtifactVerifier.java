@@ -0,0 +1,304 @@
+package net.gravitydevelopment.updater;
+
+import java.io.*;
+import java.security.CodeSigner;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Checks that a downloaded artifact was signed by one of the author's pinned keys.
+ * <p>
+ * Keys are pinned as the hex SHA-256 fingerprint of the signer certificate's encoded public key. Jars are verified with
+ * {@link JarInputStream} as they download, so the check runs over the download stream rather than as a second read of the
+ * finished file. Zip artifacts may only contain jars, and every jar inside them is verified the same way.
+ * </p>
+ * <p>
+ * A stream is read through the local entry headers, but the server loads classes through the central directory, and the
+ * two can be made to disagree. Once the download is complete only its central directory is read, and every entry it lists
+ * must be one that was verified, with the same CRC and size. The jars inside a zip are checked the same way once they are
+ * extracted.
+ * </p>
+ * <p>
+ * Parsed trust stores are shared between instances. Artifacts that passed verification are remembered in a properties file,
+ * under the md5 the API reports for them, together with their SHA-256. The next time the same artifact is downloaded it is
+ * not verified again, but its SHA-256 must match.
+ * </p>
+ */
+final class ArtifactVerifier {
+
+    // Used for reading through entries
+    private static final int BYTE_SIZE = 1024;
+    // Parsed trust stores, keyed by the pins they were parsed from
+    private static final ConcurrentMap<String, Set<String>> TRUST_STORES = new ConcurrentHashMap<String, Set<String>>();
+
+    // Fingerprints of the keys allowed to sign artifacts
+    private final Set<String> trusted;
+    // Identifies this set of keys in the verification cache
+    private final String trustStoreId;
+    // Where verification results are persisted
+    private final File cacheFile;
+
+    /**
+     * The entries of an archive as they streamed past during verification, and of the jars inside it.
+     */
+    static final class Listing {
+        private final Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+        private final Map<String, Listing> jars = new HashMap<String, Listing>();
+        private String duplicate = null;
+
+        private void add(ZipEntry entry) {
+            if ((this.entries.put(entry.getName(), entry) != null) && (this.duplicate == null)) {
+                this.duplicate = entry.getName();
+            }
+        }
+
+        /**
+         * Get the listing of a jar inside this archive.
+         *
+         * @param name the jar's entry name.
+         * @return the jar's listing, or null if no such jar was verified.
+         */
+        Listing jar(String name) {
+            return this.jars.get(name);
+        }
+    }
+
+    /**
+     * Create a verifier for the given pinned keys.
+     *
+     * @param fingerprints hex SHA-256 fingerprints of the trusted public keys, colons and case are ignored.
+     * @param cacheFile    the file verification results are persisted to.
+     */
+    ArtifactVerifier(List<String> fingerprints, File cacheFile) {
+        final List<String> pins = new ArrayList<String>();
+        for (final String fingerprint : fingerprints) {
+            pins.add(fingerprint.replace(":", "").trim().toLowerCase());
+        }
+        Collections.sort(pins);
+        final String key = pins.toString();
+
+        Set<String> store = ArtifactVerifier.TRUST_STORES.get(key);
+        if (store == null) {
+            store = Collections.unmodifiableSet(new HashSet<String>(pins));
+            ArtifactVerifier.TRUST_STORES.putIfAbsent(key, store);
+        }
+        this.trusted = store;
+        this.trustStoreId = ArtifactVerifier.sha256(key.getBytes());
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Find an artifact that has already passed verification against this trust store.
+     *
+     * @param md5 the md5 the API reports for the artifact, may be null.
+     * @return the hex SHA-256 of the verified artifact with that md5, or null if there is none.
+     */
+    String verifiedSha256(String md5) {
+        if (md5 == null) {
+            return null;
+        }
+        try {
+            return PropertiesFile.read(this.cacheFile).getProperty(this.cacheKey(md5));
+        } catch (final IOException e) {
+            // An unreadable cache only costs a re-verification
+            return null;
+        }
+    }
+
+    /**
+     * Remember that an artifact passed verification against this trust store.
+     *
+     * @param md5    the md5 the API reports for the artifact.
+     * @param sha256 the hex SHA-256 of the artifact's contents.
+     * @throws IOException if the cache could not be written.
+     */
+    void remember(String md5, final String sha256) throws IOException {
+        final String key = this.cacheKey(md5);
+        PropertiesFile.edit(this.cacheFile, new PropertiesFile.Edit() {
+            @Override
+            public boolean apply(Properties properties) {
+                properties.setProperty(key, sha256.toLowerCase());
+                return true;
+            }
+        }, "Artifacts verified by Updater, do not edit");
+    }
+
+    private String cacheKey(String md5) {
+        return md5.toLowerCase() + "." + this.trustStoreId;
+    }
+
+    /**
+     * Read an artifact from the stream and check every class-bearing entry is signed by a trusted key.
+     * The stream is left open, and may have unread data left in it once verification completes.
+     *
+     * @param in   the artifact's contents.
+     * @param zip  true if the artifact is a zip of jars rather than a jar.
+     * @param name the artifact's name, used in errors.
+     * @return the entries that were verified, to check the central directory against.
+     * @throws IOException       if the artifact could not be read.
+     * @throws SecurityException if the artifact is unsigned, tampered with, signed by an unknown key, or is a zip containing
+     *                           anything other than jars.
+     */
+    Listing verify(InputStream in, boolean zip, String name) throws IOException {
+        if (!zip) {
+            return this.verifyJar(in, name);
+        }
+        final Listing listing = new Listing();
+        final ZipInputStream zipStream = new ZipInputStream(in) {
+            @Override
+            protected ZipEntry createZipEntry(String entryName) {
+                final ZipEntry entry = super.createZipEntry(entryName);
+                listing.add(entry);
+                return entry;
+            }
+        };
+        ZipEntry entry;
+        while ((entry = zipStream.getNextEntry()) != null) {
+            if (listing.duplicate != null) {
+                throw new SecurityException(name + " contains " + listing.duplicate + " more than once");
+            }
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (!entry.getName().endsWith(".jar")) {
+                throw new SecurityException(name + " contains " + entry.getName() + ", which can't be signed");
+            }
+            listing.jars.put(entry.getName(), this.verifyJar(zipStream, entry.getName()));
+        }
+        return listing;
+    }
+
+    private Listing verifyJar(InputStream in, String name) throws IOException {
+        final RecordingJarInputStream jar = new RecordingJarInputStream(in);
+        if (jar.getManifest() == null) {
+            throw new SecurityException(name + " is not signed");
+        }
+        final byte[] buffer = new byte[ArtifactVerifier.BYTE_SIZE];
+        JarEntry entry;
+        while ((entry = jar.getNextJarEntry()) != null) {
+            if (entry.isDirectory() || ArtifactVerifier.isSignatureFile(entry.getName())) {
+                continue;
+            }
+            // Signers are only known once the entry has been read in full
+            while (jar.read(buffer, 0, ArtifactVerifier.BYTE_SIZE) != -1) {
+                // Discard
+            }
+            if (!this.isTrusted(entry.getCodeSigners())) {
+                throw new SecurityException(entry.getName() + " in " + name + " is not signed by a trusted key");
+            }
+        }
+        if (jar.listing.duplicate != null) {
+            throw new SecurityException(name + " contains " + jar.listing.duplicate + " more than once");
+        }
+        return jar.listing;
+    }
+
+    /**
+     * Check that the central directory of a finished archive lists exactly the entries that were verified as it streamed.
+     * Only the central directory is read.
+     *
+     * @param file    the finished archive.
+     * @param listing the entries that were verified.
+     * @param name    the archive's name, used in errors.
+     * @throws IOException       if the central directory could not be read.
+     * @throws SecurityException if an entry was added, removed, repeated or changed.
+     */
+    void checkCentralDirectory(File file, Listing listing, String name) throws IOException {
+        if (listing == null) {
+            throw new SecurityException(name + " was not verified");
+        }
+        final ZipFile zipFile = new ZipFile(file);
+        try {
+            final Set<String> names = new HashSet<String>();
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (!names.add(entry.getName())) {
+                    throw new SecurityException(name + " contains " + entry.getName() + " more than once");
+                }
+                final ZipEntry streamed = listing.entries.get(entry.getName());
+                if ((streamed == null) || (streamed.getCrc() != entry.getCrc()) || (streamed.getSize() != entry.getSize())) {
+                    throw new SecurityException(entry.getName() + " in " + name + " is not the entry that was verified");
+                }
+            }
+            if (names.size() != listing.entries.size()) {
+                throw new SecurityException(name + " does not list every entry that was verified");
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private boolean isTrusted(CodeSigner[] signers) {
+        if (signers == null) {
+            return false;
+        }
+        for (final CodeSigner signer : signers) {
+            final List<? extends Certificate> chain = signer.getSignerCertPath().getCertificates();
+            if (!chain.isEmpty() && this.trusted.contains(ArtifactVerifier.sha256(chain.get(0).getPublicKey().getEncoded()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSignatureFile(String name) {
+        final String upper = name.toUpperCase();
+        return upper.startsWith("META-INF/") && (upper.equals("META-INF/MANIFEST.MF") || upper.endsWith(".SF")
+                || upper.endsWith(".RSA") || upper.endsWith(".DSA") || upper.endsWith(".EC"));
+    }
+
+    /**
+     * Records every entry header it reads, including the manifest that {@link JarInputStream} hides.
+     */
+    private static final class RecordingJarInputStream extends JarInputStream {
+        // Not initialized in its declaration, as the superclass constructor reads the first entries before it would be
+        private Listing listing;
+
+        RecordingJarInputStream(InputStream in) throws IOException {
+            super(in, true);
+        }
+
+        @Override
+        protected ZipEntry createZipEntry(String name) {
+            final ZipEntry entry = super.createZipEntry(name);
+            if (this.listing == null) {
+                this.listing = new Listing();
+            }
+            this.listing.add(entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Get the lowercase hex SHA-256 of some bytes.
+     *
+     * @param data the bytes to hash.
+     * @return the hex digest.
+     */
+    static String sha256(byte[] data) {
+        try {
+            return ArtifactVerifier.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] data) {
+        final StringBuilder builder = new StringBuilder(data.length * 2);
+        for (final byte b : data) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
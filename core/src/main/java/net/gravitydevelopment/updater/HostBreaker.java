@@ -0,0 +1,202 @@
+package net.gravitydevelopment.updater;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Tracks the health of a single host so that a hung or failing API doesn't tie up every plugin's update thread.
+ * <p>
+ * After {@link #FAILURE_THRESHOLD} consecutive failures the circuit opens and requests fail fast for {@link #COOL_DOWN}.
+ * Once the cool-down has passed a single probe request is let through; its outcome closes or re-opens the circuit. A probe
+ * that never reports back is given up on after another cool-down. Timeouts are derived from the latencies of recent
+ * successful requests.
+ * </p>
+ * <p>
+ * Plugins usually shade their own copy of Updater, and each makes only a request or two per boot, so a breaker only works if
+ * every copy sees the same failures and latencies. When a state file is given, the circuit and the latency samples live in
+ * that file and every decision is made under its lock. Without one, or if the file can't be used, the state is kept in
+ * memory for this copy alone.
+ * </p>
+ */
+final class HostBreaker {
+
+    // Timeout used for a host until enough latency samples have been observed
+    private static final int DEFAULT_TIMEOUT = 15000;
+    // Lower bound for adaptive timeouts
+    private static final int MIN_TIMEOUT = 2000;
+    // Upper bound for adaptive timeouts
+    private static final int MAX_TIMEOUT = 30000;
+    // Adaptive timeouts are this multiple of the observed 95th percentile latency
+    private static final int TIMEOUT_MULTIPLIER = 3;
+    // Consecutive failures before a host's circuit opens
+    private static final int FAILURE_THRESHOLD = 3;
+    // How long an open circuit fails fast before allowing a probe request
+    private static final long COOL_DOWN = 120000L;
+    // Number of latency samples kept per host
+    private static final int SAMPLE_SIZE = 32;
+    // Samples required before the observed latency is trusted over the default timeout
+    private static final int MIN_SAMPLES = 5;
+    // Comment written at the top of the state file
+    private static final String STATE_COMMENT = "Health of the hosts Updater contacts, shared by every plugin, do not edit";
+
+    private final File stateFile;
+    private final String failuresKey;
+    private final String openedAtKey;
+    private final String probeAtKey;
+    private final String latenciesKey;
+    // Used when there is no state file, or it can't be used
+    private final Properties memory = new Properties();
+
+    /**
+     * Create a breaker for a host.
+     *
+     * @param host      the host's name.
+     * @param stateFile the file shared by every copy of Updater that the host's state is kept in, or null to keep it in memory.
+     */
+    HostBreaker(String host, File stateFile) {
+        this.stateFile = stateFile;
+        this.failuresKey = host + ".failures";
+        this.openedAtKey = host + ".opened-at";
+        this.probeAtKey = host + ".probe-at";
+        this.latenciesKey = host + ".latencies";
+    }
+
+    /**
+     * Check whether a request to this host may be made right now.
+     *
+     * @return true if the circuit is closed, or if the caller has been chosen as the half-open probe.
+     */
+    boolean allowRequest() {
+        final boolean[] allowed = new boolean[1];
+        this.update(new PropertiesFile.Edit() {
+            @Override
+            public boolean apply(Properties state) {
+                final long openedAt = HostBreaker.get(state, HostBreaker.this.openedAtKey);
+                if (openedAt == 0) {
+                    allowed[0] = true;
+                    return false;
+                }
+                final long now = System.currentTimeMillis();
+                final long probeAt = HostBreaker.get(state, HostBreaker.this.probeAtKey);
+                if (((now - openedAt) < HostBreaker.COOL_DOWN) || ((now - probeAt) < HostBreaker.COOL_DOWN)) {
+                    allowed[0] = false;
+                    return false;
+                }
+                state.setProperty(HostBreaker.this.probeAtKey, Long.toString(now));
+                allowed[0] = true;
+                return true;
+            }
+        });
+        return allowed[0];
+    }
+
+    /**
+     * Record a request that the host answered.
+     *
+     * @param latency how long the host took to answer, in milliseconds.
+     */
+    void recordSuccess(final long latency) {
+        this.update(new PropertiesFile.Edit() {
+            @Override
+            public boolean apply(Properties state) {
+                final long[] samples = HostBreaker.this.samples(state);
+                final int kept = Math.min(samples.length, HostBreaker.SAMPLE_SIZE - 1);
+                final StringBuilder builder = new StringBuilder();
+                for (int i = samples.length - kept; i < samples.length; i++) {
+                    builder.append(samples[i]).append(',');
+                }
+                builder.append(latency);
+                state.setProperty(HostBreaker.this.latenciesKey, builder.toString());
+                state.remove(HostBreaker.this.failuresKey);
+                state.remove(HostBreaker.this.openedAtKey);
+                state.remove(HostBreaker.this.probeAtKey);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Record a request that the host failed to answer.
+     */
+    void recordFailure() {
+        this.update(new PropertiesFile.Edit() {
+            @Override
+            public boolean apply(Properties state) {
+                final long failures = HostBreaker.get(state, HostBreaker.this.failuresKey) + 1;
+                state.setProperty(HostBreaker.this.failuresKey, Long.toString(failures));
+                if (state.containsKey(HostBreaker.this.probeAtKey) || (failures >= HostBreaker.FAILURE_THRESHOLD)) {
+                    state.setProperty(HostBreaker.this.openedAtKey, Long.toString(System.currentTimeMillis()));
+                }
+                state.remove(HostBreaker.this.probeAtKey);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Get the connect and read timeout to use for the next request to this host.
+     *
+     * @return timeout in milliseconds.
+     */
+    int getTimeout() {
+        final long[] sorted = this.samples(this.update(null));
+        if (sorted.length < HostBreaker.MIN_SAMPLES) {
+            return HostBreaker.DEFAULT_TIMEOUT;
+        }
+        Arrays.sort(sorted);
+        final long p95 = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+        final long timeout = p95 * HostBreaker.TIMEOUT_MULTIPLIER;
+        return (int) Math.max(HostBreaker.MIN_TIMEOUT, Math.min(HostBreaker.MAX_TIMEOUT, timeout));
+    }
+
+    /**
+     * Apply an edit to the host's state, in the state file if there is one.
+     *
+     * @param edit the change to make, or null to only read the state.
+     * @return the state after the edit.
+     */
+    private Properties update(PropertiesFile.Edit edit) {
+        if (this.stateFile != null) {
+            try {
+                return (edit == null) ? PropertiesFile.read(this.stateFile) : PropertiesFile.edit(this.stateFile, edit, HostBreaker.STATE_COMMENT);
+            } catch (final IOException e) {
+                // A breaker that can't share its state still protects this copy
+            }
+        }
+        synchronized (this.memory) {
+            if (edit != null) {
+                edit.apply(this.memory);
+            }
+            return (Properties) this.memory.clone();
+        }
+    }
+
+    private long[] samples(Properties state) {
+        final String value = state.getProperty(this.latenciesKey);
+        if ((value == null) || value.isEmpty()) {
+            return new long[0];
+        }
+        final String[] split = value.split(",");
+        final long[] samples = new long[split.length];
+        int count = 0;
+        for (final String sample : split) {
+            try {
+                samples[count] = Long.parseLong(sample.trim());
+                count++;
+            } catch (final NumberFormatException e) {
+                // Skip anything we didn't write
+            }
+        }
+        return Arrays.copyOf(samples, count);
+    }
+
+    private static long get(Properties state, String key) {
+        try {
+            return Long.parseLong(state.getProperty(key, "0"));
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package net.gravitydevelopment.updater;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cleans up after Updater in an update folder.
+ * <p>
+ * Every file Updater writes to the update folder is recorded in a manifest, so only those files are ever removed; anything
+ * else in the folder is left alone. A run scans the folder once, removes partial downloads and extraction folders that
+ * haven't been touched for {@link #GRACE_PERIOD}, and removes downloaded artifacts that are older than the retention age or
+ * over the retention size (oldest first). Runs happen on a short-lived background thread. The time of the last run is kept
+ * in the manifest, so however many plugins ask for a run, the folder is scanned at most once per {@link #RUN_INTERVAL}.
+ * </p>
+ * <p>
+ * Plugins usually shade their own copy of Updater, so the manifest on disk is the only state shared between them. It is only
+ * ever read and changed under a file lock, and a run holds that lock while it deletes, so no copy can record a new file
+ * between a run deciding to delete it and deleting it.
+ * </p>
+ */
+final class Housekeeper {
+
+    // Wait this long after the first request so that plugins enabling together share one run
+    private static final long RUN_DELAY = 10000L;
+    // Requests within this long of the previous run are ignored
+    private static final long RUN_INTERVAL = 3600000L;
+    // Partial downloads and extraction folders untouched for this long are assumed to be abandoned
+    private static final long GRACE_PERIOD = 3600000L;
+    // Comment written at the top of the manifest
+    private static final String MANIFEST_COMMENT = "Files written to the update folder by Updater, do not edit";
+    // Manifest key holding the time of the last run, file names can't contain a slash so it can't clash with an entry
+    private static final String LAST_RUN_KEY = "/last-run";
+    // Housekeepers shared by every Updater instance, keyed by update folder
+    private static final ConcurrentMap<String, Housekeeper> HOUSEKEEPERS = new ConcurrentHashMap<String, Housekeeper>();
+
+    /**
+     * The kinds of file Updater leaves in an update folder.
+     */
+    enum Kind {
+        /**
+         * A download that has not completed yet.
+         */
+        PARTIAL,
+        /**
+         * A folder that a zip update is extracted into.
+         */
+        EXTRACTED,
+        /**
+         * A complete update waiting for the server to restart.
+         */
+        ARTIFACT
+    }
+
+    private final File updateFolder;
+    private final File manifestFile;
+    private final Logger logger;
+    private final long maxAge;
+    private final long maxSize;
+    private boolean scheduled = false;
+    private long lastRun = 0;
+
+    private Housekeeper(File updateFolder, File manifestFile, Logger logger, long maxAge, long maxSize) {
+        this.updateFolder = updateFolder;
+        this.manifestFile = manifestFile;
+        this.logger = logger;
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the housekeeper for an update folder, creating it if this is the first Updater to use the folder.
+     * The first caller's manifest and retention policy are used.
+     *
+     * @param updateFolder the update folder to look after.
+     * @param manifestFile the file that written files are recorded in.
+     * @param logger       the logger to report errors to.
+     * @param maxAge       how long a downloaded artifact is kept, in milliseconds.
+     * @param maxSize      how many bytes of downloaded artifacts are kept.
+     * @return the folder's housekeeper.
+     */
+    static Housekeeper forFolder(File updateFolder, File manifestFile, Logger logger, long maxAge, long maxSize) {
+        final String key = updateFolder.getAbsolutePath();
+        Housekeeper housekeeper = Housekeeper.HOUSEKEEPERS.get(key);
+        if (housekeeper == null) {
+            final Housekeeper created = new Housekeeper(updateFolder, manifestFile, logger, maxAge, maxSize);
+            housekeeper = Housekeeper.HOUSEKEEPERS.putIfAbsent(key, created);
+            if (housekeeper == null) {
+                housekeeper = created;
+            }
+        }
+        return housekeeper;
+    }
+
+    /**
+     * Record that Updater is about to write a file in the update folder. Must be called before the file is created.
+     *
+     * @param file the file being written.
+     * @param kind what the file is.
+     */
+    void record(final File file, final Kind kind) {
+        try {
+            PropertiesFile.edit(this.manifestFile, new PropertiesFile.Edit() {
+                @Override
+                public boolean apply(Properties manifest) {
+                    manifest.setProperty(file.getName(), kind.name() + ":" + System.currentTimeMillis());
+                    return true;
+                }
+            }, Housekeeper.MANIFEST_COMMENT);
+        } catch (final IOException e) {
+            this.logger.log(Level.WARNING, "The updater could not write its manifest at " + this.manifestFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Ask for the update folder to be cleaned up. Requests made while a run is pending, or soon after a run, are ignored.
+     */
+    synchronized void requestRun() {
+        if (this.scheduled || ((System.currentTimeMillis() - this.lastRun) < Housekeeper.RUN_INTERVAL)) {
+            return;
+        }
+        this.scheduled = true;
+        // A thread per run rather than a shared executor, so nothing is left running to pin this copy after a reload
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(Housekeeper.RUN_DELAY);
+                } catch (final InterruptedException e) {
+                    return;
+                } finally {
+                    synchronized (Housekeeper.this) {
+                        Housekeeper.this.scheduled = false;
+                        Housekeeper.this.lastRun = System.currentTimeMillis();
+                    }
+                }
+                Housekeeper.this.run();
+            }
+        }, "Updater Housekeeping");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            PropertiesFile.edit(this.manifestFile, new PropertiesFile.Edit() {
+                @Override
+                public boolean apply(Properties manifest) {
+                    return Housekeeper.this.clean(manifest);
+                }
+            }, Housekeeper.MANIFEST_COMMENT);
+        } catch (final Exception e) {
+            // Nothing else would report this, the executor swallows it
+            this.logger.log(Level.WARNING, "The updater could not clean up its update folder at " + this.updateFolder.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Delete everything the manifest says is no longer needed, unless another copy of Updater already has recently. Called
+     * with the manifest locked.
+     *
+     * @param manifest the manifest, updated to match what is left on disk.
+     * @return true if the manifest was changed.
+     */
+    private boolean clean(Properties manifest) {
+        final long now = System.currentTimeMillis();
+        try {
+            if ((now - Long.parseLong(manifest.getProperty(Housekeeper.LAST_RUN_KEY, "0"))) < Housekeeper.RUN_INTERVAL) {
+                return false;
+            }
+        } catch (final NumberFormatException e) {
+            // Run now and overwrite it
+        }
+        manifest.setProperty(Housekeeper.LAST_RUN_KEY, Long.toString(now));
+
+        final File[] contents = this.updateFolder.listFiles();
+        if (contents == null) {
+            return true;
+        }
+        final Map<String, File> present = new HashMap<String, File>();
+        for (final File file : contents) {
+            present.put(file.getName(), file);
+        }
+
+        final List<File> delete = new ArrayList<File>();
+        final List<File> artifacts = new ArrayList<File>();
+        final Map<File, Long> written = new HashMap<File, Long>();
+        for (final String name : manifest.stringPropertyNames()) {
+            if (name.equals(Housekeeper.LAST_RUN_KEY)) {
+                continue;
+            }
+            final File file = present.get(name);
+            if (file == null) {
+                // Already gone, such as when the server installed the update
+                manifest.remove(name);
+                continue;
+            }
+            final Kind kind;
+            final long time;
+            try {
+                final String[] entry = manifest.getProperty(name).split(":", 2);
+                kind = Kind.valueOf(entry[0]);
+                time = Long.parseLong(entry[1]);
+            } catch (final RuntimeException e) {
+                // We can't tell what this is any more, so forget it rather than guess
+                this.logger.warning("The updater dropped an unreadable manifest entry for " + name);
+                manifest.remove(name);
+                continue;
+            }
+            if (kind != Kind.ARTIFACT) {
+                // Another copy of Updater may still be writing this, so only remove it once it has gone quiet
+                if ((now - Math.max(time, file.lastModified())) > Housekeeper.GRACE_PERIOD) {
+                    delete.add(file);
+                }
+            } else if ((now - time) > this.maxAge) {
+                delete.add(file);
+            } else {
+                artifacts.add(file);
+                written.put(file, time);
+            }
+        }
+
+        // Remove the oldest artifacts until the rest fit
+        Collections.sort(artifacts, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return written.get(b).compareTo(written.get(a));
+            }
+        });
+        long size = 0;
+        for (final File artifact : artifacts) {
+            size += artifact.length();
+            if (size > this.maxSize) {
+                delete.add(artifact);
+            }
+        }
+
+        for (final File file : delete) {
+            if (Housekeeper.delete(file)) {
+                manifest.remove(file.getName());
+            } else {
+                this.logger.severe("The updater could not delete file at: " + file.getAbsolutePath());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Delete a file, or a folder and everything in it.
+     *
+     * @param file the file to delete.
+     * @return true if it was deleted.
+     */
+    static boolean delete(File file) {
+        final File[] contents = file.listFiles();
+        if (contents != null) {
+            for (final File child : contents) {
+                Housekeeper.delete(child);
+            }
+        }
+        return file.delete();
+    }
+}
@@ -0,0 +1,111 @@
+package net.gravitydevelopment.updater;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Properties;
+
+/**
+ * A properties file shared by every copy of Updater on the server.
+ * <p>
+ * Plugins usually shade their own copy of Updater, so nothing held in a static field is shared between them. Every read and
+ * edit of the file therefore happens under a file lock, and edits are applied to what is currently on disk rather than to a
+ * copy held in memory, so no copy's entries are lost to another copy's write.
+ * </p>
+ */
+final class PropertiesFile {
+
+    // How long to wait between attempts to lock a file another copy in this JVM has locked
+    private static final long LOCK_RETRY_DELAY = 50L;
+    // Attempts before giving up on the lock
+    private static final int LOCK_ATTEMPTS = 200;
+
+    /**
+     * A change to make to the file's contents while it is locked.
+     */
+    interface Edit {
+        /**
+         * Change the file's current contents.
+         *
+         * @param properties the contents, as currently on disk.
+         * @return true if the contents were changed and need to be written back.
+         */
+        boolean apply(Properties properties);
+    }
+
+    private PropertiesFile() {
+    }
+
+    /**
+     * Read the file under a lock.
+     *
+     * @param file the file to read, which doesn't need to exist.
+     * @return the file's contents.
+     * @throws IOException if the file could not be read.
+     */
+    static Properties read(File file) throws IOException {
+        return PropertiesFile.edit(file, null, null);
+    }
+
+    /**
+     * Read the file, apply an edit and write the result back if it changed anything, all under one lock.
+     *
+     * @param file    the file to edit, created if it doesn't exist.
+     * @param edit    the change to make.
+     * @param comment the comment to write at the top of the file.
+     * @return the file's contents after the edit.
+     * @throws IOException if the file could not be read or written.
+     */
+    static Properties edit(File file, Edit edit, String comment) throws IOException {
+        final Properties properties = new Properties();
+        if ((edit == null) && !file.exists()) {
+            return properties;
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            final FileLock lock = PropertiesFile.lock(raf.getChannel());
+            try {
+                final byte[] contents = new byte[(int) raf.length()];
+                raf.readFully(contents);
+                properties.load(new ByteArrayInputStream(contents));
+
+                if ((edit != null) && edit.apply(properties)) {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    properties.store(out, comment);
+                    raf.setLength(0);
+                    raf.write(out.toByteArray());
+                }
+            } finally {
+                lock.release();
+            }
+        } finally {
+            raf.close();
+        }
+        return properties;
+    }
+
+    /**
+     * Lock a file, waiting for any other copy of Updater that holds the lock.
+     *
+     * @param channel the file to lock.
+     * @return the lock.
+     * @throws IOException if the file could not be locked.
+     */
+    static FileLock lock(FileChannel channel) throws IOException {
+        for (int i = 0; i < PropertiesFile.LOCK_ATTEMPTS; i++) {
+            try {
+                return channel.lock();
+            } catch (final OverlappingFileLockException e) {
+                // Another copy of Updater in this JVM holds the lock, file locks only exclude other processes
+                try {
+                    Thread.sleep(PropertiesFile.LOCK_RETRY_DELAY);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to lock a file");
+                }
+            }
+        }
+        throw new IOException("Timed out waiting to lock a file");
+    }
+}
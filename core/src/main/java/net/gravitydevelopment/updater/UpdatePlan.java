@@ -0,0 +1,224 @@
+package net.gravitydevelopment.updater;
+
+import java.io.*;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+/**
+ * A plan-only check of every project registered with this copy of Updater.
+ * <p>
+ * Every Updater that has been started or registered adds its project, keyed by its update folder and project id so that a
+ * tool staging several servers in one JVM gets an entry per server. {@link #check()} checks all of them concurrently without
+ * downloading anything. Projects that were only registered are checked then; projects whose Updater was started report what
+ * that Updater already found, so nothing is checked twice. The resulting plan can be written as a single JSON report for
+ * deploy tooling to read:
+ * </p>
+ * <pre>
+ * UpdatePlan.check().write(new File("plan.json"));
+ * </pre>
+ * <p>
+ * The registry lives in a static field, so it only sees Updaters from the same copy of these classes, and a plugin that
+ * shades and relocates Updater only sees its own projects. For a report covering every plugin on a server, each Updater can
+ * instead publish its findings to one shared report file as it checks; entries from every copy are merged into it under a
+ * lock.
+ * </p>
+ * <p>
+ * Each project in the report has its project id, plugin name, update folder, when it was checked, current version,
+ * candidate name and version, release type, game version, md5, download url and size (-1 if unknown), a decision named after
+ * the {@link AbstractUpdater.UpdateResult} the project reached, and the reason for it.
+ * </p>
+ */
+public final class UpdatePlan {
+
+    // Most projects checked at once
+    private static final int MAX_THREADS = 8;
+
+    private final long generated;
+    private final List<JSONObject> projects;
+
+    private UpdatePlan(long generated, List<JSONObject> projects) {
+        this.generated = generated;
+        this.projects = projects;
+    }
+
+    /**
+     * Check every registered project for an update, blocking until all have been checked.
+     *
+     * @return the plan.
+     * @throws InterruptedException if interrupted while waiting for the checks.
+     */
+    public static UpdatePlan check() throws InterruptedException {
+        final List<AbstractUpdater> updaters = new ArrayList<AbstractUpdater>(AbstractUpdater.registered());
+        final List<JSONObject> projects = new ArrayList<JSONObject>();
+        if (updaters.isEmpty()) {
+            return new UpdatePlan(System.currentTimeMillis(), projects);
+        }
+
+        final List<Callable<JSONObject>> checks = new ArrayList<Callable<JSONObject>>();
+        for (final AbstractUpdater updater : updaters) {
+            checks.add(new Callable<JSONObject>() {
+                @Override
+                public JSONObject call() {
+                    return updater.plan();
+                }
+            });
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(updaters.size(), UpdatePlan.MAX_THREADS), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Updater Plan");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            final List<Future<JSONObject>> results = executor.invokeAll(checks);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    projects.add(results.get(i).get());
+                } catch (final ExecutionException e) {
+                    projects.add(UpdatePlan.failed(updaters.get(i), e.getCause()));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new UpdatePlan(System.currentTimeMillis(), projects);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject failed(AbstractUpdater updater, Throwable cause) {
+        final JSONObject entry = new JSONObject();
+        entry.put("project-id", updater.getProjectId());
+        entry.put("name", updater.getPluginName());
+        entry.put("update-folder", updater.getUpdateFolder().getAbsolutePath());
+        entry.put("checked", System.currentTimeMillis());
+        entry.put("current-version", updater.getLocalVersion());
+        entry.put("decision", AbstractUpdater.UpdateResult.FAIL_DBO.name());
+        entry.put("reason", "The check failed: " + cause);
+        return entry;
+    }
+
+    /**
+     * Add a project's entry to a report shared with every other copy of Updater, replacing any earlier entry for the same
+     * project and update folder. The report is rewritten under a lock, so entries added by other plugins are kept.
+     *
+     * @param file    the report.
+     * @param project the project's entry.
+     * @throws IOException if the report could not be written.
+     */
+    static void record(File file, JSONObject project) throws IOException {
+        // The report itself is replaced on every write, so a separate file is locked
+        final RandomAccessFile lockFile = new RandomAccessFile(new File(file.getAbsolutePath() + ".lock"), "rw");
+        try {
+            final FileLock lock = PropertiesFile.lock(lockFile.getChannel());
+            try {
+                final String key = UpdatePlan.key(project);
+                final List<JSONObject> projects = new ArrayList<JSONObject>();
+                for (final JSONObject existing : UpdatePlan.read(file)) {
+                    if (!key.equals(UpdatePlan.key(existing))) {
+                        projects.add(existing);
+                    }
+                }
+                projects.add(project);
+                new UpdatePlan(System.currentTimeMillis(), projects).write(file);
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    /**
+     * Read the projects from a report.
+     *
+     * @param file the report.
+     * @return the report's projects, or none if it doesn't exist or can't be read.
+     */
+    private static List<JSONObject> read(File file) {
+        final List<JSONObject> projects = new ArrayList<JSONObject>();
+        if (!file.exists()) {
+            return projects;
+        }
+        try {
+            final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            final Object report;
+            try {
+                report = JSONValue.parse(reader);
+            } finally {
+                reader.close();
+            }
+            if ((report instanceof JSONObject) && (((JSONObject) report).get("projects") instanceof JSONArray)) {
+                for (final Object project : (JSONArray) ((JSONObject) report).get("projects")) {
+                    if (project instanceof JSONObject) {
+                        projects.add((JSONObject) project);
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            // An unreadable report is rebuilt from the entries that follow
+        }
+        return projects;
+    }
+
+    private static String key(JSONObject project) {
+        return project.get("update-folder") + ":" + project.get("project-id");
+    }
+
+    /**
+     * Get the plan as a JSON document.
+     *
+     * @return the JSON report.
+     */
+    @SuppressWarnings("unchecked")
+    public String toJSONString() {
+        final JSONArray array = new JSONArray();
+        array.addAll(this.projects);
+        final JSONObject report = new JSONObject();
+        report.put("generated", this.generated);
+        report.put("projects", array);
+        return report.toJSONString();
+    }
+
+    /**
+     * Write the plan as a JSON report. The report is written to a temporary file first and renamed over the old report, so
+     * readers never see a partial report. On platforms that can't rename over an existing file, the old report is removed
+     * first and there is a moment with no report at all.
+     *
+     * @param file where to write the report.
+     * @throws IOException if the report could not be written.
+     */
+    public void write(File file) throws IOException {
+        final File temp = new File(file.getAbsolutePath() + ".tmp");
+        boolean written = false;
+        try {
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+            try {
+                writer.write(this.toJSONString());
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(file)) {
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("Could not replace " + file.getAbsolutePath());
+                }
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Could not move " + temp.getAbsolutePath() + " to " + file.getAbsolutePath());
+                }
+            }
+            written = true;
+        } finally {
+            if (!written && temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+}